@@ -0,0 +1,305 @@
+/*
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.hatemile.jee.load;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Scanner;
+import java.util.regex.Pattern;
+import javax.servlet.DispatcherType;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.hatemile.jee.AccessibleFilter;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * The AccessibleFilterLoadIT class runs the AccessibleFilter inside an
+ * embedded Jetty, serving the corpus pages under closed-loop and open-loop
+ * load, and fails when the results regress beyond the stored baseline.
+ *
+ * <p>The load is configured by the system properties {@code load.concurrency},
+ * {@code load.rate}, {@code load.warmup}, {@code load.duration} and
+ * {@code load.tolerance}, whose defaults are in the load-test profile. With
+ * {@code load.record=true} the results replace the baseline instead of being
+ * compared with it.</p>
+ */
+public class AccessibleFilterLoadIT {
+
+    /**
+     * The pages of corpus.
+     */
+    private static final List<String> PAGES = Arrays.asList("article.html",
+            "form.html", "table.html", "catalog.html");
+
+    /**
+     * The selector of stylesheet to hide changes, included in converted pages.
+     */
+    private static final String HIDE_CHANGES_MARKER = "#container-skippers";
+
+    /**
+     * The required field of form page, marked by the conversion.
+     */
+    private static final Pattern REQUIRED_FIELD_MARKER = Pattern.compile(
+            "<input[^>]*id=\"name\"[^>]*aria-required=\"true\"");
+
+    /**
+     * The prefix of names of container threads.
+     */
+    private static final String SERVER_THREAD_PREFIX = "hatemile-load-server";
+
+    /**
+     * The minimum number of container threads.
+     */
+    private static final int MIN_SERVER_THREADS = 64;
+
+    /**
+     * The maximum number of container threads.
+     */
+    private static final int MAX_SERVER_THREADS = 4096;
+
+    /**
+     * The container threads reserved to acceptors and selectors.
+     */
+    private static final int RESERVED_SERVER_THREADS = 16;
+
+    /**
+     * The number of open-loop clients by closed-loop client.
+     */
+    private static final int OPEN_LOOP_CLIENTS_FACTOR = 4;
+
+    /**
+     * The embedded servlet container.
+     */
+    private static Server server;
+
+    /**
+     * The URL of corpus servlet.
+     */
+    private static String baseURL;
+
+    /**
+     * Returns the value of a system property set by the load-test profile.
+     * @param name The name of property.
+     * @return The value of property.
+     */
+    private static String getRequiredProperty(final String name) {
+        String value = System.getProperty(name);
+        Assert.assertNotNull("Missing system property " + name
+                + ", run with mvn -Pload-test verify.", value);
+
+        return value;
+    }
+
+    /**
+     * Returns the value of a system property that must be a integer between
+     * 1 and maximum.
+     * @param name The name of property.
+     * @param maximum The maximum value of property.
+     * @return The value of property.
+     */
+    private static int getPositiveInteger(final String name,
+            final long maximum) {
+        String value = getRequiredProperty(name);
+        long number = 0;
+        try {
+            number = Long.parseLong(value.trim());
+        } catch (NumberFormatException exception) {
+            Assert.fail("Invalid " + name + ": " + value + ", use a integer.");
+        }
+        Assert.assertTrue("Invalid " + name + ": " + value + ", use a integer"
+                + " between 1 and " + maximum + ".",
+                (number >= 1) && (number <= maximum));
+
+        return (int) number;
+    }
+
+    /**
+     * Returns the allowed relative change of results.
+     * @return The allowed relative change of results.
+     */
+    private static double getTolerance() {
+        String value = getRequiredProperty("load.tolerance");
+        double tolerance = -1;
+        try {
+            tolerance = Double.parseDouble(value.trim());
+        } catch (NumberFormatException exception) {
+            Assert.fail("Invalid load.tolerance: " + value + ", use a number.");
+        }
+        Assert.assertTrue("Invalid load.tolerance: " + value + ", use a "
+                + "number between 0 and 1, like 0.2 to 20%.",
+                (tolerance >= 0) && (tolerance < 1));
+
+        return tolerance;
+    }
+
+    /**
+     * Returns the number of closed-loop clients.
+     * @return The number of closed-loop clients.
+     */
+    private static int getConcurrency() {
+        return getPositiveInteger("load.concurrency",
+                MAX_SERVER_THREADS / OPEN_LOOP_CLIENTS_FACTOR);
+    }
+
+    /**
+     * Start the servlet container with the AccessibleFilter in front of the
+     * corpus servlet.
+     * @throws Exception Throw an exception when the container can not start.
+     */
+    @BeforeClass
+    public static void startServer() throws Exception {
+        int clients = getConcurrency() * OPEN_LOOP_CLIENTS_FACTOR;
+        LoadGenerator.setMaxConnections(clients);
+        int threads = Math.max(MIN_SERVER_THREADS,
+                clients + RESERVED_SERVER_THREADS);
+        QueuedThreadPool threadPool = new QueuedThreadPool(threads, threads);
+        threadPool.setName(SERVER_THREAD_PREFIX);
+        server = new Server(threadPool);
+
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/");
+        context.addFilter(new FilterHolder(AccessibleFilter.class), "/*",
+                EnumSet.of(DispatcherType.REQUEST));
+        ServletHolder corpus = new ServletHolder(CorpusServlet.class);
+        StringBuilder pages = new StringBuilder();
+        for (String page : PAGES) {
+            if (pages.length() > 0) {
+                pages.append(",");
+            }
+            pages.append(page);
+        }
+        corpus.setInitParameter(CorpusServlet.PAGES, pages.toString());
+        context.addServlet(corpus, "/corpus/*");
+        server.setHandler(context);
+
+        server.start();
+        baseURL = "http://127.0.0.1:" + connector.getLocalPort() + "/corpus/";
+    }
+
+    /**
+     * Stop the servlet container.
+     * @throws Exception Throw an exception when the container can not stop.
+     */
+    @AfterClass
+    public static void stopServer() throws Exception {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * Test if the filter converts the corpus pages, otherwise the load runs
+     * would measure only the fallback to the original code. The stylesheet
+     * to hide changes is included by the last step of conversion, so it is
+     * only in pages that were converted without errors.
+     * @throws Exception Throw an exception when the page can not be read.
+     */
+    @Test
+    public void testConvertCorpus() throws Exception {
+        for (String page : PAGES) {
+            InputStream inputStream = new URL(baseURL + page).openStream();
+            Scanner scanner = new Scanner(inputStream, "UTF-8");
+            StringBuilder htmlCode = new StringBuilder();
+            while (scanner.hasNextLine()) {
+                htmlCode.append(scanner.nextLine()).append("\n");
+            }
+            scanner.close();
+
+            Assert.assertTrue("Page not converted: " + page,
+                    htmlCode.indexOf(HIDE_CHANGES_MARKER) >= 0);
+            if ("form.html".equals(page)) {
+                Assert.assertTrue("Required fields not marked: " + page,
+                        REQUIRED_FIELD_MARKER.matcher(htmlCode).find());
+            }
+        }
+    }
+
+    /**
+     * Test if the throughput, latencies and allocations of filter not regress
+     * beyond the stored baseline.
+     * @throws Exception Throw an exception when the load can not run.
+     */
+    @Test
+    public void testLoad() throws Exception {
+        int concurrency = getConcurrency();
+        int rate = getPositiveInteger("load.rate", LoadGenerator.MAX_RATE);
+        int warmup = getPositiveInteger("load.warmup",
+                LoadGenerator.MAX_DURATION);
+        int duration = getPositiveInteger("load.duration",
+                LoadGenerator.MAX_DURATION);
+        double tolerance = getTolerance();
+        boolean record = Boolean.parseBoolean(getRequiredProperty(
+                "load.record"));
+        LoadBaseline baseline = new LoadBaseline(new File(getRequiredProperty(
+                "load.baseline")));
+        File report = new File(getRequiredProperty("load.report"));
+
+        Properties settings = new Properties();
+        settings.setProperty("concurrency", String.valueOf(concurrency));
+        settings.setProperty("rate", String.valueOf(rate));
+        settings.setProperty("warmup", String.valueOf(warmup));
+        settings.setProperty("duration", String.valueOf(duration));
+        settings.setProperty("java",
+                System.getProperty("java.specification.version"));
+        List<String> differences = baseline.compareSettings(settings);
+        Assert.assertTrue("No load baseline recorded, record one with "
+                + "-Dload.record=true.", record || !baseline.isEmpty());
+        Assert.assertTrue("Load settings differ from baseline, use the "
+                + "settings of baseline or record a new one with "
+                + "-Dload.record=true: " + differences, record
+                || differences.isEmpty());
+
+        RuntimeMonitor monitor = new RuntimeMonitor(SERVER_THREAD_PREFIX);
+        LoadGenerator generator = new LoadGenerator(baseURL, PAGES, monitor);
+
+        System.out.println(generator.runClosedLoop("warmup", concurrency,
+                warmup));
+        List<LoadResult> results = new ArrayList<LoadResult>();
+        results.add(generator.runClosedLoop("closed", concurrency, duration));
+        results.add(generator.runOpenLoop("open", rate,
+                concurrency * OPEN_LOOP_CLIENTS_FACTOR, duration));
+        LoadBaseline.store(results, settings, report);
+        for (LoadResult result : results) {
+            System.out.println(result);
+            Assert.assertEquals("Failed requests in " + result.getName(), 0,
+                    result.get(LoadResult.ERRORS), 0);
+        }
+
+        if (record) {
+            baseline.record(results, settings);
+        } else {
+            List<String> regressions = baseline.compare(results, tolerance);
+            Assert.assertTrue("Load regressions beyond " + tolerance + ": "
+                    + regressions, regressions.isEmpty());
+        }
+    }
+}
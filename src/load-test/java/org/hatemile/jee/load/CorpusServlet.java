@@ -0,0 +1,110 @@
+/*
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.hatemile.jee.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The CorpusServlet class serves the pages of load test corpus, as a web
+ * application behind the AccessibleFilter would do.
+ */
+public class CorpusServlet extends HttpServlet {
+
+    /**
+     * The serial version of servlet.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The init-parameter with the comma separated names of pages.
+     */
+    public static final String PAGES = "pages";
+
+    /**
+     * The classpath directory of pages.
+     */
+    public static final String CORPUS_DIRECTORY = "/corpus/";
+
+    /**
+     * The HTML code of pages by path.
+     */
+    private final Map<String, String> pages = new HashMap<String, String>();
+
+    /**
+     * Returns the content of corpus page.
+     * @param page The name of page.
+     * @return The content of page or null if the page not exists.
+     */
+    static String readPage(final String page) {
+        InputStream inputStream = CorpusServlet.class.getResourceAsStream(
+                CORPUS_DIRECTORY + page);
+        if (inputStream == null) {
+            return null;
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        Scanner scanner = new Scanner(inputStream, "UTF-8");
+        while (scanner.hasNextLine()) {
+            stringBuilder.append(scanner.nextLine()).append("\n");
+        }
+        scanner.close();
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Load the pages of corpus in memory, so that reading files does not
+     * count in the measures.
+     * @throws ServletException Throw an exception when a page not exists.
+     */
+    @Override
+    public void init() throws ServletException {
+        for (String page : getInitParameter(PAGES).split(",")) {
+            String htmlCode = readPage(page.trim());
+            if (htmlCode == null) {
+                throw new ServletException(new IllegalArgumentException(
+                        "Page not found in corpus: " + page));
+            }
+            pages.put("/" + page.trim(), htmlCode);
+        }
+    }
+
+    /**
+     * Write the page of request path.
+     * @param request The client request.
+     * @param response The response to the client.
+     * @throws IOException
+     * @throws ServletException
+     */
+    @Override
+    protected void doGet(final HttpServletRequest request,
+            final HttpServletResponse response)
+            throws IOException, ServletException {
+        String htmlCode = pages.get(request.getPathInfo());
+        if (htmlCode == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        } else {
+            response.setCharacterEncoding("UTF-8");
+            response.setContentType("text/html");
+            response.getWriter().write(htmlCode);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.hatemile.jee.load;
+
+import java.util.Arrays;
+
+/**
+ * The LatencyRecorder class stores the latencies of requests and computes
+ * their percentiles.
+ */
+public class LatencyRecorder {
+
+    /**
+     * The initial capacity of recorder.
+     */
+    private static final int INITIAL_CAPACITY = 4096;
+
+    /**
+     * The recorded latencies, in nanoseconds.
+     */
+    private long[] latencies;
+
+    /**
+     * The number of recorded latencies.
+     */
+    private int size;
+
+    /**
+     * The number of failed requests.
+     */
+    private int errors;
+
+    /**
+     * Initializes a empty recorder.
+     */
+    public LatencyRecorder() {
+        latencies = new long[INITIAL_CAPACITY];
+        size = 0;
+        errors = 0;
+    }
+
+    /**
+     * Record the latency of a successful request.
+     * @param latency The latency, in nanoseconds.
+     */
+    public synchronized void record(final long latency) {
+        if (size == latencies.length) {
+            latencies = Arrays.copyOf(latencies, size * 2);
+        }
+        latencies[size] = latency;
+        size++;
+    }
+
+    /**
+     * Record a failed request.
+     */
+    public synchronized void recordError() {
+        errors++;
+    }
+
+    /**
+     * Returns the number of successful requests.
+     * @return The number of successful requests.
+     */
+    public synchronized int getCount() {
+        return size;
+    }
+
+    /**
+     * Returns the number of failed requests.
+     * @return The number of failed requests.
+     */
+    public synchronized int getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the percentiles of recorded latencies, using the nearest-rank
+     * method.
+     * @param percentiles The percentiles, between 0 and 1.
+     * @return The latencies of percentiles, in nanoseconds.
+     */
+    public synchronized long[] getPercentiles(final double... percentiles) {
+        long[] values = new long[percentiles.length];
+        if (size > 0) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            for (int i = 0; i < percentiles.length; i++) {
+                int rank = (int) Math.ceil(percentiles[i] * size);
+                values[i] = sorted[Math.max(rank, 1) - 1];
+            }
+        }
+
+        return values;
+    }
+}
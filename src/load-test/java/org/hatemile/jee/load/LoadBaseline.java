@@ -0,0 +1,240 @@
+/*
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.hatemile.jee.load;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * The LoadBaseline class compares the results of load runs with the stored
+ * results of a previous execution, recorded with the same load settings.
+ *
+ * <p>The throughput is compared only for closed-loop runs, because the
+ * throughput of open-loop runs is fixed by the request rate. The 99.9th
+ * percentile latency is only reported, because it is the latency of few
+ * requests, dominated by the load clients and the pauses of JVM.</p>
+ */
+public class LoadBaseline {
+
+    /**
+     * The prefix of keys of load settings.
+     */
+    private static final String SETTINGS_PREFIX = "config.";
+
+    /**
+     * The header of baseline and results files.
+     */
+    private static final String HEADER = "# Baseline of AccessibleFilterLoadIT,"
+            + " compared by \"mvn -Pload-test verify\".\n"
+            + "# Record it on the reference machine, with the load settings"
+            + " that will be\n"
+            + "# compared (config.* keys), executing:\n"
+            + "#   mvn -Pload-test verify -Dload.record=true\n";
+
+    /**
+     * The metrics that regress when the value decreases.
+     */
+    private static final String[] HIGHER_IS_BETTER = {
+        LoadResult.THROUGHPUT
+    };
+
+    /**
+     * The metrics that regress when the value increases.
+     */
+    private static final String[] LOWER_IS_BETTER = {
+        LoadResult.LATENCY_P50,
+        LoadResult.LATENCY_P99,
+        LoadResult.ALLOCATION_PER_REQUEST
+    };
+
+    /**
+     * The file of baseline.
+     */
+    private final File file;
+
+    /**
+     * The values of baseline.
+     */
+    private final Properties values;
+
+    /**
+     * Initializes the baseline, loading the values of file when it exists.
+     * @param baselineFile The file of baseline.
+     * @throws IOException Throw an exception when the file can not be read.
+     */
+    public LoadBaseline(final File baselineFile) throws IOException {
+        file = baselineFile;
+        values = new Properties();
+        if (file.isFile()) {
+            InputStream inputStream = new FileInputStream(file);
+            try {
+                values.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the description of a metric that regress beyond the tolerance.
+     * @param result The result of load run.
+     * @param metric The metric.
+     * @param tolerance The allowed relative change.
+     * @param higherIsBetter True if the metric regress when the value
+     * decreases or false if it regress when the value increases.
+     * @return The description of regression or null if the metric not regress
+     * or is not in baseline.
+     */
+    private String checkMetric(final LoadResult result, final String metric,
+            final double tolerance, final boolean higherIsBetter) {
+        String baselineValue = values.getProperty(result.getName() + "."
+                + metric);
+        if ((baselineValue == null) || (higherIsBetter
+                && LoadResult.THROUGHPUT.equals(metric)
+                && !result.isClosedLoop())) {
+            return null;
+        }
+        double expected = Double.parseDouble(baselineValue);
+        double actual = result.get(metric);
+        boolean regressed;
+        if (higherIsBetter) {
+            regressed = actual < expected * (1 - tolerance);
+        } else {
+            regressed = actual > expected * (1 + tolerance);
+        }
+        if (!regressed) {
+            return null;
+        }
+
+        return String.format(Locale.ENGLISH, "%s.%s: %.3f, baseline %.3f",
+                result.getName(), metric, actual, expected);
+    }
+
+    /**
+     * Compare the load settings with the settings of baseline, because results
+     * of different loads are not comparable.
+     * @param settings The load settings.
+     * @return The descriptions of settings that differ from baseline.
+     */
+    public List<String> compareSettings(final Properties settings) {
+        List<String> differences = new ArrayList<String>();
+        for (String setting : settings.stringPropertyNames()) {
+            String expected = values.getProperty(SETTINGS_PREFIX + setting);
+            String actual = settings.getProperty(setting);
+            if (!actual.equals(expected)) {
+                differences.add(String.format(Locale.ENGLISH,
+                        "%s%s: %s, baseline %s", SETTINGS_PREFIX, setting,
+                        actual, expected));
+            }
+        }
+
+        return differences;
+    }
+
+    /**
+     * Compare the results with baseline. The metrics not in baseline are
+     * ignored.
+     * @param results The results of load runs.
+     * @param tolerance The allowed relative change, like 0.2 to 20%.
+     * @return The descriptions of metrics that regress beyond the tolerance.
+     */
+    public List<String> compare(final List<LoadResult> results,
+            final double tolerance) {
+        List<String> regressions = new ArrayList<String>();
+        for (LoadResult result : results) {
+            for (String metric : HIGHER_IS_BETTER) {
+                String regression = checkMetric(result, metric, tolerance,
+                        true);
+                if (regression != null) {
+                    regressions.add(regression);
+                }
+            }
+            for (String metric : LOWER_IS_BETTER) {
+                String regression = checkMetric(result, metric, tolerance,
+                        false);
+                if (regression != null) {
+                    regressions.add(regression);
+                }
+            }
+        }
+
+        return regressions;
+    }
+
+    /**
+     * Check if the baseline has values.
+     * @return True if the baseline has values or false if it is empty.
+     */
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /**
+     * Write the results in a properties file, with sorted keys and without
+     * timestamp, so that a new record changes only the values.
+     * @param results The results of load runs.
+     * @param settings The load settings of results.
+     * @param output The properties file.
+     * @throws IOException Throw an exception when the file can not be
+     * written.
+     */
+    public static void store(final List<LoadResult> results,
+            final Properties settings, final File output) throws IOException {
+        Properties properties = new Properties();
+        for (String setting : settings.stringPropertyNames()) {
+            properties.setProperty(SETTINGS_PREFIX + setting,
+                    settings.getProperty(setting));
+        }
+        for (LoadResult result : results) {
+            result.copyTo(properties);
+        }
+        File directory = output.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create directory: " + directory);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(output),
+                "ISO-8859-1");
+        try {
+            writer.write(HEADER);
+            for (String key
+                    : new TreeSet<String>(properties.stringPropertyNames())) {
+                writer.write(key + "=" + properties.getProperty(key) + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Replace the values of baseline file by the results.
+     * @param results The results of load runs.
+     * @param settings The load settings of results.
+     * @throws IOException Throw an exception when the file can not be
+     * written.
+     */
+    public void record(final List<LoadResult> results,
+            final Properties settings) throws IOException {
+        store(results, settings, file);
+    }
+}
@@ -0,0 +1,309 @@
+/*
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.hatemile.jee.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The LoadGenerator class sends requests of corpus pages to the servlet
+ * container, in closed-loop or open-loop. The clients reuse keep-alive
+ * connections, so the measures do not include the connection setup, as long
+ * as {@link #setMaxConnections(int)} is called before the first request.
+ */
+public class LoadGenerator {
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The maximum number of open-loop requests per second.
+     */
+    public static final int MAX_RATE = 10000;
+
+    /**
+     * The maximum duration of a load run, in seconds.
+     */
+    public static final int MAX_DURATION = 3600;
+
+    /**
+     * The connect and read timeout of requests, in milliseconds.
+     */
+    private static final int REQUEST_TIMEOUT = 30000;
+
+    /**
+     * The time that a load run can last beyond its duration, waiting the last
+     * responses, in nanoseconds.
+     */
+    private static final long FINISH_TIMEOUT =
+            TimeUnit.MILLISECONDS.toNanos(2 * REQUEST_TIMEOUT);
+
+    /**
+     * The user-agent of load clients.
+     */
+    private static final String USER_AGENT = "Mozilla/5.0 (X11; Linux "
+            + "x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 "
+            + "Safari/537.36";
+
+    /**
+     * The size of buffer to read the responses.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The URLs of corpus pages.
+     */
+    private final URL[] urls;
+
+    /**
+     * The monitor of allocations and pauses.
+     */
+    private final RuntimeMonitor monitor;
+
+    /**
+     * The number of sent requests, used to choose the next page.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Initializes the generator.
+     * @param baseURL The URL of corpus servlet.
+     * @param pages The names of corpus pages.
+     * @param runtimeMonitor The monitor of allocations and pauses.
+     * @throws IOException Throw an exception when a URL is malformed.
+     */
+    public LoadGenerator(final String baseURL, final List<String> pages,
+            final RuntimeMonitor runtimeMonitor) throws IOException {
+        urls = new URL[pages.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = new URL(baseURL + pages.get(i));
+        }
+        monitor = runtimeMonitor;
+    }
+
+    /**
+     * Set the number of keep-alive connections that the clients keep open, by
+     * default only 5 by host. It must be called before the first request.
+     * @param clients The maximum number of simultaneous clients.
+     */
+    public static void setMaxConnections(final int clients) {
+        System.setProperty("http.maxConnections", String.valueOf(clients));
+    }
+
+    /**
+     * Returns a factory of daemon client threads, so that a client blocked in
+     * a request does not keep the JVM alive.
+     * @param prefix The prefix of names of threads.
+     * @return The factory of client threads.
+     */
+    private static ThreadFactory createClientFactory(final String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable,
+                        prefix + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Send the request of next corpus page and read the whole response.
+     * @param buffer The buffer to read the response.
+     * @return True if the page was served or false if the request failed or
+     * timed out.
+     */
+    private boolean sendRequest(final byte[] buffer) {
+        URL url = urls[(int) (sequence.getAndIncrement() % urls.length)];
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(REQUEST_TIMEOUT);
+            connection.setReadTimeout(REQUEST_TIMEOUT);
+            connection.setRequestProperty("User-Agent", USER_AGENT);
+            int status = connection.getResponseCode();
+            InputStream inputStream = connection.getInputStream();
+            while (inputStream.read(buffer) != -1) {
+                continue;
+            }
+            inputStream.close();
+
+            return status == HttpURLConnection.HTTP_OK;
+        } catch (IOException exception) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Send the request of next corpus page and record its latency.
+     * @param recorder The recorder of latencies.
+     * @param buffer The buffer to read the response.
+     * @param start The time that the request should be sent, in nanoseconds.
+     */
+    private void sendRequest(final LatencyRecorder recorder,
+            final byte[] buffer, final long start) {
+        if (sendRequest(buffer)) {
+            recorder.record(System.nanoTime() - start);
+        } else {
+            recorder.recordError();
+        }
+    }
+
+    /**
+     * Run a fixed number of clients, that send a new request only after the
+     * response of previous request.
+     * @param name The name of load run.
+     * @param concurrency The number of clients.
+     * @param seconds The duration of load run.
+     * @return The result of load run.
+     * @throws InterruptedException Throw an exception when the run is
+     * interrupted.
+     * @throws TimeoutException Throw an exception when the clients do not
+     * finish shortly after the duration, like when the server stalls.
+     */
+    public LoadResult runClosedLoop(final String name, final int concurrency,
+            final int seconds) throws InterruptedException, TimeoutException {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        ThreadFactory clientFactory = createClientFactory("load-client-");
+        Thread[] clients = new Thread[concurrency];
+        long elapsed;
+        monitor.start();
+        try {
+            long start = System.nanoTime();
+            final long deadline = start + (seconds * NANOS_PER_SECOND);
+            for (int i = 0; i < concurrency; i++) {
+                clients[i] = clientFactory.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        byte[] buffer = new byte[BUFFER_SIZE];
+                        long requestStart = System.nanoTime();
+                        while (requestStart < deadline) {
+                            sendRequest(recorder, buffer, requestStart);
+                            requestStart = System.nanoTime();
+                        }
+                    }
+                });
+                clients[i].start();
+            }
+            long finishDeadline = deadline + FINISH_TIMEOUT;
+            for (Thread client : clients) {
+                long remaining = finishDeadline - System.nanoTime();
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedJoin(client, remaining);
+                }
+                if (client.isAlive()) {
+                    throw new TimeoutException("The clients of " + name
+                            + " run did not finish after " + seconds
+                            + " seconds.");
+                }
+            }
+            elapsed = System.nanoTime() - start;
+        } finally {
+            monitor.stop();
+        }
+
+        return new LoadResult(name, true, elapsed, recorder, monitor);
+    }
+
+    /**
+     * Send requests at a fixed rate, independent of the responses. The latency
+     * is measured from the time that each request should be sent, so the time
+     * waiting for a free client is counted. The requests waiting for a free
+     * client are limited to one second of load, the requests beyond it are
+     * counted as errors.
+     * @param name The name of load run.
+     * @param rate The number of requests per second.
+     * @param maxConcurrency The maximum number of simultaneous requests.
+     * @param seconds The duration of load run.
+     * @return The result of load run.
+     * @throws InterruptedException Throw an exception when the run is
+     * interrupted.
+     * @throws TimeoutException Throw an exception when the requests do not
+     * finish shortly after the duration, like when the server stalls.
+     */
+    public LoadResult runOpenLoop(final String name, final int rate,
+            final int maxConcurrency, final int seconds)
+            throws InterruptedException, TimeoutException {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+            @Override
+            protected byte[] initialValue() {
+                return new byte[BUFFER_SIZE];
+            }
+        };
+        ThreadPoolExecutor clients = new ThreadPoolExecutor(maxConcurrency,
+                maxConcurrency, 0, TimeUnit.NANOSECONDS,
+                new ArrayBlockingQueue<Runnable>(rate),
+                createClientFactory("load-open-client-"));
+        long requests = (long) rate * seconds;
+        long elapsed;
+        monitor.start();
+        try {
+            long start = System.nanoTime();
+            for (long i = 0; i < requests; i++) {
+                final long requestStart = start
+                        + ((i * NANOS_PER_SECOND) / rate);
+                long wait = requestStart - System.nanoTime();
+                while (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    wait = requestStart - System.nanoTime();
+                }
+                try {
+                    clients.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            sendRequest(recorder, buffers.get(),
+                                    requestStart);
+                        }
+                    });
+                } catch (RejectedExecutionException exception) {
+                    recorder.recordError();
+                }
+            }
+            clients.shutdown();
+            long remaining = start + (seconds * NANOS_PER_SECOND)
+                    + FINISH_TIMEOUT - System.nanoTime();
+            if (!clients.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                throw new TimeoutException("The requests of " + name
+                        + " run did not finish after " + seconds
+                        + " seconds.");
+            }
+            elapsed = System.nanoTime() - start;
+        } finally {
+            clients.shutdownNow();
+            monitor.stop();
+        }
+
+        return new LoadResult(name, false, elapsed, recorder, monitor);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.hatemile.jee.load;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The LoadResult class stores the measures of a load run.
+ */
+public class LoadResult {
+
+    /**
+     * The metric of requests per second.
+     */
+    public static final String THROUGHPUT = "throughput";
+
+    /**
+     * The metric of median latency, in milliseconds.
+     */
+    public static final String LATENCY_P50 = "latency.p50";
+
+    /**
+     * The metric of 99th percentile latency, in milliseconds.
+     */
+    public static final String LATENCY_P99 = "latency.p99";
+
+    /**
+     * The metric of 99.9th percentile latency, in milliseconds.
+     */
+    public static final String LATENCY_P999 = "latency.p999";
+
+    /**
+     * The metric of megabytes allocated by container per second.
+     */
+    public static final String ALLOCATION_RATE = "allocation.rate";
+
+    /**
+     * The metric of kilobytes allocated by container per request.
+     */
+    public static final String ALLOCATION_PER_REQUEST =
+            "allocation.per.request";
+
+    /**
+     * The metric of number of garbage collector pauses of JVM, including
+     * the pauses caused by load clients.
+     */
+    public static final String GC_PAUSE_COUNT = "gc.pause.count";
+
+    /**
+     * The metric of total time of garbage collector pauses of JVM, in
+     * milliseconds.
+     */
+    public static final String GC_PAUSE_TOTAL = "gc.pause.total";
+
+    /**
+     * The metric of longest garbage collector pause of JVM, in milliseconds.
+     */
+    public static final String GC_PAUSE_MAX = "gc.pause.max";
+
+    /**
+     * The metric of failed requests.
+     */
+    public static final String ERRORS = "errors";
+
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The number of bytes in a kilobyte.
+     */
+    private static final double BYTES_PER_KILOBYTE = 1024;
+
+    /**
+     * The number of bytes in a megabyte.
+     */
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    /**
+     * The 50th percentile.
+     */
+    private static final double P50 = 0.5;
+
+    /**
+     * The 99th percentile.
+     */
+    private static final double P99 = 0.99;
+
+    /**
+     * The 99.9th percentile.
+     */
+    private static final double P999 = 0.999;
+
+    /**
+     * The name of load run.
+     */
+    private final String name;
+
+    /**
+     * True if the clients wait the responses or false if the requests are
+     * sent at a fixed rate.
+     */
+    private final boolean closedLoop;
+
+    /**
+     * The measured values by metric.
+     */
+    private final Properties metrics;
+
+    /**
+     * Initializes the result of a load run.
+     * @param runName The name of load run.
+     * @param closedLoopRun True if the clients wait the responses or false if
+     * the requests are sent at a fixed rate.
+     * @param elapsedNanos The duration of load run, in nanoseconds.
+     * @param recorder The latencies of requests.
+     * @param monitor The allocations and pauses of load run.
+     */
+    public LoadResult(final String runName, final boolean closedLoopRun,
+            final long elapsedNanos, final LatencyRecorder recorder,
+            final RuntimeMonitor monitor) {
+        name = runName;
+        closedLoop = closedLoopRun;
+        metrics = new Properties();
+
+        int count = recorder.getCount();
+        double seconds = elapsedNanos / NANOS_PER_SECOND;
+        long[] latencies = recorder.getPercentiles(P50, P99, P999);
+        double allocated = monitor.getAllocatedBytes();
+
+        put(THROUGHPUT, count / seconds);
+        put(LATENCY_P50, latencies[0] / NANOS_PER_MILLI);
+        put(LATENCY_P99, latencies[1] / NANOS_PER_MILLI);
+        put(LATENCY_P999, latencies[2] / NANOS_PER_MILLI);
+        put(ALLOCATION_RATE, allocated / BYTES_PER_MEGABYTE / seconds);
+        put(ALLOCATION_PER_REQUEST,
+                allocated / BYTES_PER_KILOBYTE / Math.max(count, 1));
+        put(GC_PAUSE_COUNT, monitor.getPauseCount());
+        put(GC_PAUSE_TOTAL, monitor.getPauseTotalMillis());
+        put(GC_PAUSE_MAX, monitor.getPauseMaxMillis());
+        put(ERRORS, recorder.getErrors());
+    }
+
+    /**
+     * Store the value of metric.
+     * @param metric The metric.
+     * @param value The value of metric.
+     */
+    private void put(final String metric, final double value) {
+        metrics.setProperty(metric,
+                String.format(Locale.ENGLISH, "%.3f", value));
+    }
+
+    /**
+     * Returns the name of load run.
+     * @return The name of load run.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Check if the clients of load run wait the responses.
+     * @return True if the clients wait the responses or false if the requests
+     * are sent at a fixed rate.
+     */
+    public boolean isClosedLoop() {
+        return closedLoop;
+    }
+
+    /**
+     * Returns the value of metric.
+     * @param metric The metric.
+     * @return The value of metric.
+     */
+    public double get(final String metric) {
+        return Double.parseDouble(metrics.getProperty(metric));
+    }
+
+    /**
+     * Copy the metrics to properties, using the name of load run as prefix.
+     * @param properties The properties.
+     */
+    public void copyTo(final Properties properties) {
+        for (String metric : metrics.stringPropertyNames()) {
+            properties.setProperty(name + "." + metric,
+                    metrics.getProperty(metric));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%s: %.1f req/s, "
+                + "p50 %.2f ms, p99 %.2f ms, p999 %.2f ms, "
+                + "%.1f MB/s (%.1f KB/req) allocated, "
+                + "%.0f GC pauses (total %.0f ms, max %.0f ms), "
+                + "%.0f errors", name, get(THROUGHPUT), get(LATENCY_P50),
+                get(LATENCY_P99), get(LATENCY_P999), get(ALLOCATION_RATE),
+                get(ALLOCATION_PER_REQUEST), get(GC_PAUSE_COUNT),
+                get(GC_PAUSE_TOTAL), get(GC_PAUSE_MAX), get(ERRORS));
+    }
+}
@@ -0,0 +1,274 @@
+/*
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.hatemile.jee.load;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * The RuntimeMonitor class measures the bytes allocated by the threads of
+ * servlet container and the garbage collector pauses of JVM during a load
+ * run. The pauses are of whole JVM, so they include the garbage of load
+ * clients that run in the same JVM of container.
+ */
+public class RuntimeMonitor implements NotificationListener {
+
+    /**
+     * The prefix of names of threads whose allocations are measured.
+     */
+    private final String threadPrefix;
+
+    /**
+     * The thread bean of JVM.
+     */
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    /**
+     * The allocated bytes of each measured thread when the monitor started.
+     */
+    private final Map<Long, Long> startAllocations =
+            new HashMap<Long, Long>();
+
+    /**
+     * The maximum time to wait the notifications of collections finished
+     * before the stop, in milliseconds.
+     */
+    private static final long NOTIFICATION_TIMEOUT = 1000;
+
+    /**
+     * The number of collections of each garbage collector when the monitor
+     * started.
+     */
+    private final Map<String, Long> startCollections =
+            new HashMap<String, Long>();
+
+    /**
+     * The identifier of last notified collection of each garbage collector.
+     */
+    private final Map<String, Long> notifiedCollections =
+            new HashMap<String, Long>();
+
+    /**
+     * The bytes allocated by measured threads between start and stop.
+     */
+    private long allocatedBytes;
+
+    /**
+     * The number of garbage collector pauses.
+     */
+    private int pauseCount;
+
+    /**
+     * The total time of garbage collector pauses, in milliseconds.
+     */
+    private long pauseTotalMillis;
+
+    /**
+     * The longest garbage collector pause, in milliseconds.
+     */
+    private long pauseMaxMillis;
+
+    /**
+     * Initializes the monitor.
+     * @param prefix The prefix of names of threads whose allocations are
+     * measured.
+     */
+    public RuntimeMonitor(final String prefix) {
+        threadPrefix = prefix;
+        threadBean = (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Returns the allocated bytes of each live measured thread.
+     * @return The allocated bytes by thread identifier.
+     */
+    private Map<Long, Long> getThreadAllocations() {
+        Map<Long, Long> allocations = new HashMap<Long, Long>();
+        long[] threadIds = threadBean.getAllThreadIds();
+        ThreadInfo[] threadInfos = threadBean.getThreadInfo(threadIds);
+        long[] threadAllocations =
+                threadBean.getThreadAllocatedBytes(threadIds);
+        for (int i = 0; i < threadIds.length; i++) {
+            if ((threadInfos[i] != null) && (threadAllocations[i] >= 0)
+                    && (threadInfos[i].getThreadName()
+                        .startsWith(threadPrefix))) {
+                allocations.put(threadIds[i], threadAllocations[i]);
+            }
+        }
+
+        return allocations;
+    }
+
+    /**
+     * Check if the garbage collector stops the application threads.
+     * @param gcName The name of garbage collector.
+     * @return True if the garbage collector pauses the application or false
+     * if it runs concurrently.
+     */
+    private boolean isPause(final String gcName) {
+        return !gcName.contains("Concurrent") && !gcName.contains("Cycles");
+    }
+
+    /**
+     * Start the measures.
+     */
+    public synchronized void start() {
+        allocatedBytes = 0;
+        pauseCount = 0;
+        pauseTotalMillis = 0;
+        pauseMaxMillis = 0;
+        startAllocations.clear();
+        startAllocations.putAll(getThreadAllocations());
+        startCollections.clear();
+        notifiedCollections.clear();
+        for (GarbageCollectorMXBean gcBean
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gcBean instanceof NotificationEmitter) {
+                startCollections.put(gcBean.getName(),
+                        gcBean.getCollectionCount());
+                ((NotificationEmitter) gcBean).addNotificationListener(this,
+                        null, null);
+            }
+        }
+    }
+
+    /**
+     * Wait the notifications of collections finished before the stop, because
+     * the notifications are delivered asynchronously.
+     */
+    private void waitNotifications() {
+        long deadline = System.currentTimeMillis() + NOTIFICATION_TIMEOUT;
+        for (GarbageCollectorMXBean gcBean
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            Long startCount = startCollections.get(gcBean.getName());
+            if (startCount == null) {
+                continue;
+            }
+            long count = gcBean.getCollectionCount();
+            long remaining = deadline - System.currentTimeMillis();
+            while ((count > startCount) && (remaining > 0)
+                    && (!notifiedCollections.containsKey(gcBean.getName())
+                        || (notifiedCollections.get(gcBean.getName())
+                            < count))) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Stop the measures.
+     */
+    public synchronized void stop() {
+        waitNotifications();
+        for (GarbageCollectorMXBean gcBean
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gcBean instanceof NotificationEmitter) {
+                try {
+                    ((NotificationEmitter) gcBean)
+                            .removeNotificationListener(this);
+                } catch (ListenerNotFoundException exception) {
+                    throw new IllegalStateException(exception);
+                }
+            }
+        }
+        for (Map.Entry<Long, Long> allocation
+                : getThreadAllocations().entrySet()) {
+            Long startAllocation = startAllocations.get(allocation.getKey());
+            if (startAllocation == null) {
+                allocatedBytes += allocation.getValue();
+            } else {
+                allocatedBytes += allocation.getValue() - startAllocation;
+            }
+        }
+    }
+
+    /**
+     * Record the pause of a finished garbage collection.
+     * @param notification The notification of garbage collector.
+     * @param handback The handback object, not used.
+     */
+    @Override
+    public synchronized void handleNotification(
+            final Notification notification, final Object handback) {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                .equals(notification.getType())) {
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from(
+                        (CompositeData) notification.getUserData());
+            String gcName = info.getGcName();
+            long collection = info.getGcInfo().getId();
+            Long startCount = startCollections.get(gcName);
+            if ((startCount == null) || (collection <= startCount)) {
+                return;
+            }
+            notifiedCollections.put(gcName, collection);
+            notifyAll();
+            if (isPause(gcName)) {
+                long duration = info.getGcInfo().getDuration();
+                pauseCount++;
+                pauseTotalMillis += duration;
+                pauseMaxMillis = Math.max(pauseMaxMillis, duration);
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes allocated by measured threads.
+     * @return The bytes allocated by measured threads.
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the number of garbage collector pauses.
+     * @return The number of garbage collector pauses.
+     */
+    public synchronized int getPauseCount() {
+        return pauseCount;
+    }
+
+    /**
+     * Returns the total time of garbage collector pauses.
+     * @return The total time of pauses, in milliseconds.
+     */
+    public synchronized long getPauseTotalMillis() {
+        return pauseTotalMillis;
+    }
+
+    /**
+     * Returns the longest garbage collector pause.
+     * @return The longest pause, in milliseconds.
+     */
+    public synchronized long getPauseMaxMillis() {
+        return pauseMaxMillis;
+    }
+}